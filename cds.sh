@@ -0,0 +1,17 @@
+#!/bin/sh
+# Compile into out/mms.jar, build an AppCDS archive for the project's classes on first run,
+# then start Main with the archive so most class loading at launch is skipped.
+# CDS only archives classes from JARs, hence the jar step.
+# Usage: ./cds.sh [Main options...]   (sources newer than the jar trigger a rebuild)
+set -e
+cd "$(dirname "$0")"
+if [ ! -f out/mms.jar ] || [ -n "$(find src -name '*.java' -newer out/mms.jar)" ]; then
+    rm -rf out
+    mkdir -p out/classes
+    javac -d out/classes src/*.java
+    jar cf out/mms.jar -C out/classes .
+fi
+if [ ! -f out/mms.jsa ]; then
+    java -XX:ArchiveClassesAtExit=out/mms.jsa -cp out/mms.jar Main --cds-training
+fi
+exec java -XX:SharedArchiveFile=out/mms.jsa -cp out/mms.jar Main "$@"
@@ -0,0 +1,24 @@
+// One genre/sort combination for the offline batch job. A null or empty genre means all genres.
+public class BatchConfig {
+    private final String genreFilter;
+    private final String sortMode;
+
+    public BatchConfig(String genreFilter, String sortMode) {
+        this.genreFilter = genreFilter;
+        this.sortMode = sortMode;
+    }
+
+    public String getGenreFilter() {
+        return genreFilter;
+    }
+
+    public String getSortMode() {
+        return sortMode;
+    }
+
+    // Label used in the batch output header, e.g. "Drama/rating_desc" or "All/random".
+    public String label() {
+        String genre = genreFilter == null || genreFilter.isEmpty() ? "All" : genreFilter;
+        return genre + "/" + sortMode;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Shared pool of Movie records for several MovieLibrary instances (e.g. regional catalogs).
+// Identical rows load into the same Movie object, and titles/genres are stored once, so memory
+// grows with unique titles rather than with the total size of all catalogs.
+// Each record gets an ordinal (its position in the pool) that libraries use to index it.
+public class CatalogRegistry {
+    public static final int YEAR_FEATURE = 0;
+    public static final int RATING_FEATURE = 1;
+    public static final int FIRST_GENRE_FEATURE = 2;
+
+    private final ArrayList<Movie> pool;
+    // id -> ordinals of every distinct record with that id (usually one).
+    private final ConcurrentHashMap<String, int[]> ordinalsById;
+    private final HashMap<String, String> strings;
+    // Similarity features for the whole pool, rebuilt on first use after the pool grows.
+    private volatile FeatureMatrix features;
+
+    public CatalogRegistry() {
+        pool = new ArrayList<>();
+        ordinalsById = new ConcurrentHashMap<>();
+        strings = new HashMap<>();
+        features = new FeatureMatrix(new float[0], FIRST_GENRE_FEATURE, 0);
+    }
+
+    // Return the ordinal of the matching record, adding it to the pool if it is new.
+    public synchronized int intern(String id, String title, String genre, int year, double rating) {
+        int[] ordinals = ordinalsById.get(id);
+        if (ordinals != null) {
+            for (int ordinal : ordinals) {
+                Movie existing = pool.get(ordinal);
+                if (existing.getTitle().equals(title) && existing.getGenre().equals(genre)
+                        && existing.getYear() == year && existing.getRating() == rating) {
+                    return ordinal;
+                }
+            }
+        }
+        String sharedId = ordinals != null ? pool.get(ordinals[0]).getId() : share(id);
+        int ordinal = pool.size();
+        pool.add(new Movie(sharedId, share(title), share(genre), year, rating));
+        if (ordinals == null) {
+            ordinalsById.put(sharedId, new int[] {ordinal});
+        } else {
+            int[] grown = Arrays.copyOf(ordinals, ordinals.length + 1);
+            grown[ordinals.length] = ordinal;
+            ordinalsById.put(sharedId, grown);
+        }
+        return ordinal;
+    }
+
+    public synchronized Movie getMovie(int ordinal) {
+        return pool.get(ordinal);
+    }
+
+    // Ordinals for an upper-case id, or an empty array. Safe to call while other threads load.
+    public int[] ordinalsOf(String id) {
+        int[] ordinals = ordinalsById.get(id);
+        return ordinals == null ? new int[0] : ordinals;
+    }
+
+    public synchronized int size() {
+        return pool.size();
+    }
+
+    // Feature matrix covering every ordinal, shared by all libraries on this registry.
+    public FeatureMatrix getFeatures() {
+        FeatureMatrix current = features;
+        if (current.getRows() == size()) {
+            return current;
+        }
+        return buildFeatures();
+    }
+
+    // Row per ordinal: normalized year, normalized rating, then genre one-hot; rows are unit length.
+    // Year and rating come first and genres keep their slot, so an older profile is still a valid
+    // prefix of a newer matrix. Normalization uses the ranges of the whole pool.
+    private synchronized FeatureMatrix buildFeatures() {
+        int count = pool.size();
+        if (features.getRows() == count) {
+            return features;
+        }
+        HashMap<String, Integer> genreIndex = new HashMap<>();
+        int minYear = Integer.MAX_VALUE;
+        int maxYear = Integer.MIN_VALUE;
+        double minRating = Double.MAX_VALUE;
+        double maxRating = -Double.MAX_VALUE;
+        for (Movie movie : pool) {
+            genreIndex.putIfAbsent(movie.getGenre().toLowerCase(), FIRST_GENRE_FEATURE + genreIndex.size());
+            minYear = Math.min(minYear, movie.getYear());
+            maxYear = Math.max(maxYear, movie.getYear());
+            minRating = Math.min(minRating, movie.getRating());
+            maxRating = Math.max(maxRating, movie.getRating());
+        }
+        int featureCount = FIRST_GENRE_FEATURE + genreIndex.size();
+        float[] values = new float[featureCount * count];
+        for (int i = 0; i < count; i++) {
+            Movie movie = pool.get(i);
+            float year = maxYear > minYear ? (float) (movie.getYear() - minYear) / (maxYear - minYear) : 0f;
+            float rating = maxRating > minRating ? (float) ((movie.getRating() - minRating) / (maxRating - minRating)) : 0f;
+            float norm = (float) Math.sqrt(1 + year * year + rating * rating);
+            values[YEAR_FEATURE * count + i] = year / norm;
+            values[RATING_FEATURE * count + i] = rating / norm;
+            values[genreIndex.get(movie.getGenre().toLowerCase()) * count + i] = 1f / norm;
+        }
+        features = new FeatureMatrix(values, featureCount, count);
+        return features;
+    }
+
+    private String share(String text) {
+        String existing = strings.putIfAbsent(text, text);
+        return existing == null ? text : existing;
+    }
+
+    // Column-major: get(f, ordinal) is values[f * rows + ordinal]. Immutable once built.
+    public static final class FeatureMatrix {
+        private final float[] values;
+        private final int featureCount;
+        private final int rows;
+
+        private FeatureMatrix(float[] values, int featureCount, int rows) {
+            this.values = values;
+            this.featureCount = featureCount;
+            this.rows = rows;
+        }
+
+        public float[] getValues() {
+            return values;
+        }
+
+        public int getFeatureCount() {
+            return featureCount;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+// Collects one menu listing as bytes in the console's charset and writes it to System.out
+// in a single call, so a long listing costs one write and one flush rather than one per row.
+// Movie rows use the bytes cached in Movie. One instance is reused; not thread-safe.
+public class ConsoleListing {
+    public static final Charset CHARSET = consoleCharset();
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(CHARSET);
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+    public ConsoleListing text(String text) {
+        byte[] bytes = text.getBytes(CHARSET);
+        buffer.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    public ConsoleListing movie(Movie movie) {
+        byte[] bytes = movie.descriptionBytes(CHARSET);
+        buffer.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    public ConsoleListing newline() {
+        buffer.write(NEWLINE, 0, NEWLINE.length);
+        return this;
+    }
+
+    // Write everything collected so far and start a new listing.
+    public void flush() {
+        try {
+            buffer.writeTo(System.out);
+        } catch (IOException e) {
+            // PrintStream does not throw; it records errors for checkError().
+        }
+        System.out.flush();
+        buffer.reset();
+    }
+
+    // The charset the JDK uses for System.out: stdout.encoding (JDK 18+), then
+    // sun.stdout.encoding (set for Windows consoles), then the default charset.
+    private static Charset consoleCharset() {
+        for (String property : new String[] {"stdout.encoding", "sun.stdout.encoding"}) {
+            String name = System.getProperty(property);
+            if (name != null && Charset.isSupported(name)) {
+                return Charset.forName(name);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+}
@@ -1,26 +1,37 @@
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 
 // Stores all watched records for one user.
 public class HistoryLog {
     private final ArrayList<History> entries;
+    // Same records ordered by watch date (oldest first). ISO dates compare as plain strings.
+    private final ArrayList<History> byDate;
 
     public HistoryLog() {
         entries = new ArrayList<>();
+        byDate = new ArrayList<>();
     }
 
     public HistoryLog(ArrayList<History> existing) {
         entries = existing;
+        byDate = new ArrayList<>(existing);
+        byDate.sort(Comparator.comparing(History::getWatchedDate));
     }
 
     public void addEntry(String movieId, String date) {
         String id = movieId.toUpperCase();
+        History entry = new History(id, date);
         for (int i = 0; i < entries.size(); i++) {
             if (entries.get(i).getMovieId().equalsIgnoreCase(id)) {
-                entries.set(i, new History(id, date));
+                removeFromIndex(entries.get(i));
+                entries.set(i, entry);
+                insertIntoIndex(entry);
                 return;
             }
         }
-        entries.add(new History(id, date));
+        entries.add(entry);
+        insertIntoIndex(entry);
     }
 
     public boolean containsMovie(String movieId) {
@@ -33,10 +44,83 @@ public class HistoryLog {
         return false;
     }
 
+    // Date the movie was last watched, or null if it is not in the history.
+    public String getWatchedDate(String movieId) {
+        String id = movieId.toUpperCase();
+        for (History entry : entries) {
+            if (entry.getMovieId().equalsIgnoreCase(id)) {
+                return entry.getWatchedDate();
+            }
+        }
+        return null;
+    }
+
     public ArrayList<History> getEntries() {
         return entries;
     }
 
+    public int size() {
+        return entries.size();
+    }
+
+    // Newest k entries, newest first.
+    public ArrayList<History> mostRecent(int k) {
+        return page(0, k);
+    }
+
+    // One page of history, newest first. Page 0 is the most recent.
+    public ArrayList<History> page(int pageIndex, int pageSize) {
+        ArrayList<History> result = new ArrayList<>();
+        if (pageIndex < 0 || pageSize <= 0) {
+            return result;
+        }
+        int start = byDate.size() - 1 - pageIndex * pageSize;
+        for (int i = start; i >= 0 && i > start - pageSize; i--) {
+            result.add(byDate.get(i));
+        }
+        return result;
+    }
+
+    public int pageCount(int pageSize) {
+        if (pageSize <= 0) {
+            return 0;
+        }
+        return (byDate.size() + pageSize - 1) / pageSize;
+    }
+
+    // Entries watched between from and to (inclusive, "yyyy-MM-dd"), oldest first.
+    public ArrayList<History> entriesBetween(String from, String to) {
+        int start = lowerBound(from);
+        int end = upperBound(to);
+        ArrayList<History> result = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            result.add(byDate.get(i));
+        }
+        return result;
+    }
+
+    // Number of entries watched in the given month ("yyyy-MM").
+    public int countInMonth(String yearMonth) {
+        return upperBound(yearMonth + "-99") - lowerBound(yearMonth + "-00");
+    }
+
+    // Per-month counts ("yyyy-MM" -> count), oldest month first. Undated entries are skipped.
+    public LinkedHashMap<String, Integer> monthlyCounts() {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        int i = upperBound("");
+        while (i < byDate.size()) {
+            String date = byDate.get(i).getWatchedDate();
+            String month = date.length() >= 7 ? date.substring(0, 7) : date;
+            int end = upperBound(month + "-99");
+            if (end <= i) {
+                end = i + 1;
+            }
+            counts.put(month, end - i);
+            i = end;
+        }
+        return counts;
+    }
+
     public String toStorageString() {
         if (entries.isEmpty()) {
             return "";
@@ -47,4 +131,48 @@ public class HistoryLog {
         }
         return result;
     }
+
+    private void insertIntoIndex(History entry) {
+        byDate.add(upperBound(entry.getWatchedDate()), entry);
+    }
+
+    private void removeFromIndex(History entry) {
+        int end = upperBound(entry.getWatchedDate());
+        for (int i = lowerBound(entry.getWatchedDate()); i < end; i++) {
+            if (byDate.get(i) == entry) {
+                byDate.remove(i);
+                return;
+            }
+        }
+    }
+
+    // First index whose date is >= key.
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = byDate.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (byDate.get(mid).getWatchedDate().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose date is > key.
+    private int upperBound(String key) {
+        int low = 0;
+        int high = byDate.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (byDate.get(mid).getWatchedDate().compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 }
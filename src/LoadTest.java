@@ -0,0 +1,286 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Synthetic load against the core classes behind Main's user menu.
+// Generates movies.csv/users.csv in a work directory, then runs one session per simulated user.
+// Usage: java LoadTest [--users N] [--movies N] [--seconds N] [--think-ms N]
+//                      [--mix login=10,add=25,remove=10,watch=25,recommend=30] [--dir DIR]
+//                      [--pbkdf2-iterations N]
+public class LoadTest {
+    private static final String[] OPERATIONS = {"login", "add", "remove", "watch", "recommend"};
+    private static final String[] GENRES = {"Action", "Comedy", "Drama", "Horror", "Romance", "Sci-Fi", "Thriller", "Animation"};
+    private static final String[] SORT_MODES = {
+        RecommendationEngine.MODE_RATING_DESC, RecommendationEngine.MODE_YEAR_DESC,
+        RecommendationEngine.MODE_RANDOM, RecommendationEngine.MODE_TRENDING, RecommendationEngine.MODE_SIMILAR
+    };
+    private static final String PASSWORD = "secret1";
+    private static final String SAVE = "save";
+    // Held across a change and its users.csv rewrite. A ReentrantLock rather than synchronized,
+    // so a virtual thread waiting on it or blocked in the file write can unmount (JDK 21 pins
+    // the carrier inside a synchronized block).
+    private static final ReentrantLock USERS_LOCK = new ReentrantLock();
+
+    public static void main(String[] args) throws InterruptedException {
+        int userCount = 1000;
+        int movieCount = 5000;
+        int seconds = 30;
+        int thinkMillis = 50;
+        String mix = "login=10,add=25,remove=10,watch=25,recommend=30";
+        String dir = "loadtest";
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--users" -> userCount = Integer.parseInt(args[i + 1]);
+                case "--movies" -> movieCount = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--think-ms" -> thinkMillis = Integer.parseInt(args[i + 1]);
+                case "--mix" -> mix = args[i + 1];
+                case "--dir" -> dir = args[i + 1];
+                // Must be set before PasswordHasher is first used; it reads the property once.
+                case "--pbkdf2-iterations" -> System.setProperty("mms.pbkdf2.iterations", args[i + 1]);
+                default -> System.out.println("Unknown option: " + args[i]);
+            }
+        }
+        int[] weights = parseMix(mix);
+        if (weights == null) {
+            return;
+        }
+
+        new File(dir).mkdirs();
+        String movieFile = dir + "/movies.csv";
+        String userFile = dir + "/users.csv";
+        if (!generateMovies(movieFile, movieCount) || !generateUsers(userFile, userCount, movieCount)) {
+            return;
+        }
+        MovieLibrary library = new MovieLibrary();
+        if (!library.loadFromFile(movieFile)) {
+            return;
+        }
+        UserStorage storage = new UserStorage();
+        HashMap<String, User> users = storage.loadUsers(userFile);
+        RecommendationEngine engine = new RecommendationEngine(PopularityStats.fromUsers(users));
+
+        HashMap<String, LatencyHistogram> latencies = new HashMap<>();
+        for (String operation : OPERATIONS) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+        latencies.put(SAVE, new LatencyHistogram());
+        System.out.println("Running " + userCount + " users for " + seconds + "s, think time " + thinkMillis + "ms, mix " + mix);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long started = System.nanoTime();
+        ExecutorService executor = newSessionExecutor(userCount);
+        ArrayList<User> sessions = new ArrayList<>(users.values());
+        for (int i = 0; i < sessions.size(); i++) {
+            User user = sessions.get(i);
+            long seed = i;
+            int think = thinkMillis;
+            executor.submit(() -> runSession(user, library, engine, storage, users, userFile, weights, think, deadline,
+                    new SplittableRandom(seed), latencies));
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        storage.saveUsers(users, userFile);
+        printReport(latencies, elapsed);
+    }
+
+    // Virtual threads when the JDK has them (21+), otherwise one platform thread per session.
+    private static ExecutorService newSessionExecutor(int sessions) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(1, sessions));
+        }
+    }
+
+    // Like Main, add/remove/watch (and a login that migrates a plaintext password) rewrite users.csv.
+    // All sessions share that one file, so a change plus its save runs under USERS_LOCK,
+    // which also keeps the save from reading a list another session is changing. The operation's
+    // latency includes the lock wait and the save; the save alone is reported as "save".
+    private static void runSession(User user, MovieLibrary library, RecommendationEngine engine, UserStorage storage,
+                                   HashMap<String, User> users, String userFile, int[] weights, int thinkMillis,
+                                   long deadline, SplittableRandom random, HashMap<String, LatencyHistogram> latencies) {
+        ArrayList<Movie> movies = library.getAllMovies();
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        try {
+            while (System.nanoTime() < deadline) {
+                int pick = random.nextInt(total);
+                int op = 0;
+                while (pick >= weights[op]) {
+                    pick -= weights[op];
+                    op++;
+                }
+                String movieId = movies.get(random.nextInt(movies.size())).getId();
+                long start = System.nanoTime();
+                switch (OPERATIONS[op]) {
+                    case "login" -> {
+                        boolean wasHashed = user.hasHashedPassword();
+                        if (user.verifyPassword(PASSWORD) && !wasHashed) {
+                            USERS_LOCK.lock();
+                            try {
+                                save(storage, users, userFile, latencies);
+                            } finally {
+                                USERS_LOCK.unlock();
+                            }
+                        }
+                    }
+                    case "add" -> {
+                        USERS_LOCK.lock();
+                        try {
+                            user.addToWatchlist(movieId);
+                            save(storage, users, userFile, latencies);
+                        } finally {
+                            USERS_LOCK.unlock();
+                        }
+                    }
+                    case "remove" -> {
+                        USERS_LOCK.lock();
+                        try {
+                            ArrayList<String> items = user.getWatchlist().getItems();
+                            if (!items.isEmpty()) {
+                                user.removeFromWatchlist(items.get(random.nextInt(items.size())));
+                            }
+                            save(storage, users, userFile, latencies);
+                        } finally {
+                            USERS_LOCK.unlock();
+                        }
+                    }
+                    case "watch" -> {
+                        USERS_LOCK.lock();
+                        try {
+                            user.markWatched(movieId, LocalDate.now().toString());
+                            save(storage, users, userFile, latencies);
+                        } finally {
+                            USERS_LOCK.unlock();
+                        }
+                    }
+                    default -> {
+                        String genre = random.nextInt(3) == 0 ? null : GENRES[random.nextInt(GENRES.length)];
+                        engine.recommend(user, library, genre, SORT_MODES[random.nextInt(SORT_MODES.length)], 10);
+                    }
+                }
+                latencies.get(OPERATIONS[op]).record(System.nanoTime() - start);
+                if (thinkMillis > 0) {
+                    Thread.sleep(random.nextInt(thinkMillis * 2 + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void save(UserStorage storage, HashMap<String, User> users, String userFile,
+                             HashMap<String, LatencyHistogram> latencies) {
+        long start = System.nanoTime();
+        storage.saveUsers(users, userFile);
+        latencies.get(SAVE).record(System.nanoTime() - start);
+    }
+
+    // "login=10,add=25,..." -> weights in OPERATIONS order. Missing operations get 0.
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] bits = part.split("=");
+            int index = -1;
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                if (OPERATIONS[i].equals(bits[0].trim())) {
+                    index = i;
+                }
+            }
+            if (index < 0 || bits.length != 2) {
+                System.out.println("Bad mix entry: " + part);
+                return null;
+            }
+            try {
+                weights[index] = Integer.parseInt(bits[1].trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Bad mix entry: " + part);
+                return null;
+            }
+            total += weights[index];
+        }
+        if (total <= 0) {
+            System.out.println("Operation mix must have a positive total.");
+            return null;
+        }
+        return weights;
+    }
+
+    private static boolean generateMovies(String path, int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        try (PrintWriter writer = new PrintWriter(path)) {
+            writer.println("id,title,genre,year,rating");
+            for (int i = 1; i <= count; i++) {
+                String genre = GENRES[random.nextInt(GENRES.length)];
+                int year = 1950 + random.nextInt(76);
+                double rating = random.nextInt(11, 100) / 10.0;
+                writer.println("M" + i + ",Movie " + i + "," + genre + "," + year + "," + rating);
+            }
+            return true;
+        } catch (FileNotFoundException e) {
+            System.out.println("Unable to write " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Plaintext passwords, so the first login of each user also exercises the hash migration.
+    private static boolean generateUsers(String path, int count, int movieCount) {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate today = LocalDate.now();
+        try (PrintWriter writer = new PrintWriter(path)) {
+            writer.println("username,password,watchlist,history");
+            for (int i = 1; i <= count; i++) {
+                StringBuilder watchlist = new StringBuilder();
+                for (int k = random.nextInt(10); k > 0; k--) {
+                    if (watchlist.length() > 0) {
+                        watchlist.append(';');
+                    }
+                    watchlist.append('M').append(1 + random.nextInt(movieCount));
+                }
+                StringBuilder history = new StringBuilder();
+                for (int k = random.nextInt(30); k > 0; k--) {
+                    if (history.length() > 0) {
+                        history.append(';');
+                    }
+                    history.append('M').append(1 + random.nextInt(movieCount)).append('@').append(today.minusDays(random.nextInt(365)));
+                }
+                writer.println("user" + i + "," + PASSWORD + "," + watchlist + "," + history);
+            }
+            return true;
+        } catch (FileNotFoundException e) {
+            System.out.println("Unable to write " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void printReport(HashMap<String, LatencyHistogram> latencies, double elapsedSeconds) {
+        System.out.println();
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50_us", "p99_us", "p999_us", "max_us");
+        long total = 0;
+        for (String operation : OPERATIONS) {
+            LatencyHistogram h = latencies.get(operation);
+            total += h.getCount();
+            System.out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation, h.getCount(), h.getCount() / elapsedSeconds,
+                    h.getPercentile(50) / 1000.0, h.getPercentile(99) / 1000.0, h.getPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+        }
+        System.out.printf("total      %10d %10.1f  (%.1fs)%n", total, total / elapsedSeconds, elapsedSeconds);
+        LatencyHistogram save = latencies.get(SAVE);
+        System.out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f  (part of the operations above)%n", SAVE, save.getCount(),
+                save.getCount() / elapsedSeconds, save.getPercentile(50) / 1000.0, save.getPercentile(99) / 1000.0,
+                save.getPercentile(99.9) / 1000.0, save.getMax() / 1000.0);
+    }
+}
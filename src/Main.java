@@ -1,39 +1,77 @@
+import java.lang.management.ManagementFactory;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
 
 // CLI entry point for the movie tracker.
 public class Main {
     private static final String MOVIE_FILE = "data/movies.csv";
     private static final String USER_FILE = "data/users.csv";
+    private static final String METRICS_FILE = "data/metrics.csv";
+    private static final int METRICS_DUMP_SECONDS = 60;
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static boolean showTiming;
+    private static boolean firstRecommendationTimed;
+    // Total time spent waiting in readLine, so command metrics can leave out typing time.
+    private static long inputWaitNanos;
+    private static final ConsoleListing LISTING = new ConsoleListing();
 
     public static void main(String[] args) {
+        Metrics.registerMBean();
+        Metrics.startPeriodicDump(METRICS_FILE, METRICS_DUMP_SECONDS);
+        UserStorage userStorage = new UserStorage();
+        if (runDataCommand(args, userStorage)) {
+            return;
+        }
         MovieLibrary movieLibrary = new MovieLibrary();
         if (!movieLibrary.loadFromFile(MOVIE_FILE)) {
             return;
         }
 
-        UserStorage userStorage = new UserStorage();
         HashMap<String, User> users = userStorage.loadUsers(USER_FILE);
-        RecommendationEngine recommendationEngine = new RecommendationEngine();
+        PopularityStats popularity = PopularityStats.fromUsers(users);
+        RecommendationEngine recommendationEngine = new RecommendationEngine(popularity);
+        showTiming = hasFlag(args, "--timing");
+        if (hasFlag(args, "--cds-training")) {
+            // Run the warm-up in the foreground and exit; used with -XX:ArchiveClassesAtExit (see cds.sh).
+            Warmup.run(movieLibrary, recommendationEngine);
+            return;
+        }
+        if (!hasFlag(args, "--no-warmup")) {
+            Warmup.startInBackground(movieLibrary, recommendationEngine);
+        }
         Scanner scanner = new Scanner(System.in);
+        SplittableRandom sessionRandom = parseSeed(args);
 
         User currentUser = null;
         boolean running = true;
+        boolean firstMenuShown = false;
         while (running) {
             if (currentUser == null) {
+                if (!firstMenuShown) {
+                    firstMenuShown = true;
+                    long sinceStartMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                    reportStartup("startup.firstMenu", "Time to first menu", sinceStartMillis * 1_000_000L);
+                }
                 showGuestMenu();
-                String choice = scanner.nextLine().trim();
+                String choice = readLine(scanner).trim();
+                long started = Metrics.start();
+                long waitedBefore = inputWaitNanos;
                 switch (choice) {
-                    case "1" -> currentUser = handleLogin(scanner, users);
-                    case "2" -> createAccount(scanner, users, userStorage);
+                    case "1" -> currentUser = handleLogin(scanner, users, userStorage);
+                    case "2" -> createAccount(scanner, users, userStorage, popularity);
                     case "3" -> running = false;
                     default -> System.out.println("Invalid option. Please try again.");
                 }
+                Metrics.record(guestCommandName(choice), started + (inputWaitNanos - waitedBefore));
             } else {
                 showUserMenu(currentUser);
-                String choice = scanner.nextLine().trim();   //trim avoid space
+                String choice = readLine(scanner).trim();   //trim avoid space
+                long started = Metrics.start();
+                long waitedBefore = inputWaitNanos;
                 switch (choice) {
                     case "1" -> browseMovies(movieLibrary, currentUser);
                     case "2" -> {
@@ -50,8 +88,8 @@ public class Main {
                         markMovieAsWatched(scanner, currentUser, movieLibrary);
                         userStorage.saveUsers(users, USER_FILE);
                     }
-                    case "6" -> viewHistory(currentUser, movieLibrary);
-                    case "7" -> getRecommendations(scanner, currentUser, movieLibrary, recommendationEngine);
+                    case "6" -> viewHistory(scanner, currentUser, movieLibrary);
+                    case "7" -> getRecommendations(scanner, currentUser, movieLibrary, recommendationEngine, sessionRandom);
                     case "8" -> {
                         changePassword(scanner, currentUser);
                         userStorage.saveUsers(users, USER_FILE);
@@ -63,10 +101,12 @@ public class Main {
                     case "10" -> running = false;
                     default -> System.out.println("Invalid option. Please try again.");
                 }
+                Metrics.record(userCommandName(choice), started + (inputWaitNanos - waitedBefore));
             }
         }
 
         userStorage.saveUsers(users, USER_FILE);   //backup
+        Metrics.dump(METRICS_FILE);
         scanner.close();
         System.out.println("Goodbye!");
     }
@@ -94,18 +134,27 @@ public class Main {
         System.out.print("Choose an option: ");
     }
 
-    // Simple username/password login from users.csv.
-    private static User handleLogin(Scanner scanner, HashMap<String, User> users) {
+    // Username/password login from users.csv. Saves right away if a plaintext password was migrated.
+    private static User handleLogin(Scanner scanner, HashMap<String, User> users, UserStorage storage) {
         System.out.print("Username: ");
-        String username = scanner.nextLine().trim();
+        String username = readLine(scanner).trim();
         if (!users.containsKey(username)) {
             System.out.println("User not found.");
             return null;
         }
         System.out.print("Password: ");
-        String password = scanner.nextLine().trim();
+        String password = readLine(scanner).trim();
         User user = users.get(username);
-        if (user.verifyPassword(password)) {
+        boolean wasHashed = user.hasHashedPassword();
+        PasswordHasher.Outcome outcome = user.checkPassword(password);
+        if (outcome == PasswordHasher.Outcome.BUSY) {
+            System.out.println("Login service is busy, please try again.");
+            return null;
+        }
+        if (outcome == PasswordHasher.Outcome.MATCH) {
+            if (!wasHashed) {
+                storage.saveUsers(users, USER_FILE);
+            }
             System.out.println("Login successful!");
             return user;
         }
@@ -114,10 +163,10 @@ public class Main {
     }
 
     // Create new account with password confirmation and length check.
-    private static void createAccount(Scanner scanner, HashMap<String, User> users, UserStorage storage) {
+    private static void createAccount(Scanner scanner, HashMap<String, User> users, UserStorage storage, PopularityStats popularity) {
         System.out.println("\n--- Create Account ---");
         System.out.print("Choose a username: ");
-        String username = scanner.nextLine().trim();
+        String username = readLine(scanner).trim();
         if (username.isEmpty()) {
             System.out.println("Username cannot be empty.");
             return;
@@ -131,18 +180,24 @@ public class Main {
             return;
         }
         System.out.print("Choose a password (5-14 characters): ");
-        String password = scanner.nextLine().trim();
+        String password = readLine(scanner).trim();
         if (password.length() < 5 || password.length() > 14) {
             System.out.println("Password length must be between 5 and 14 characters.");
             return;
         }
         System.out.print("Confirm password: ");
-        String confirm = scanner.nextLine().trim();
+        String confirm = readLine(scanner).trim();
         if (!password.equals(confirm)) {
             System.out.println("Passwords do not match.");
             return;
         }
-        User newUser = new User(username, password, new Watchlist(), new HistoryLog());
+        String hashed = PasswordHasher.hash(password);
+        if (hashed == null) {
+            System.out.println("Password service is busy, please try again.");
+            return;
+        }
+        User newUser = new User(username, hashed, new Watchlist(), new HistoryLog());
+        newUser.attachStats(popularity);
         users.put(username, newUser);
         storage.saveUsers(users, USER_FILE);
         System.out.println("Account created. You can now log in.");
@@ -153,17 +208,17 @@ public class Main {
         System.out.println("\n--- All Movies ---");
         ArrayList<Movie> movies = library.getAllMovies();
         for (Movie movie : movies) {
-            String status = "";
             if (currentUser != null && currentUser.hasWatched(movie.getId())) {
-                status = "[watched] ";
+                LISTING.text("[watched] ");
             }
-            System.out.println(status + movie.shortDescription());
+            LISTING.movie(movie).newline();
         }
+        LISTING.flush();
     }
 
     private static void addMovieToWatchlist(Scanner scanner, User user, MovieLibrary library) {
         System.out.print("Enter movie ID to add: ");
-        String id = scanner.nextLine().trim().toUpperCase();
+        String id = readLine(scanner).trim().toUpperCase();
         Movie movie = library.getMovieById(id);
         if (movie == null) {
             System.out.println("Movie not found.");
@@ -180,7 +235,7 @@ public class Main {
             System.out.println("You have watched this movie before.");
             while (true) {
                 System.out.print("Add to watchlist anyway? (y/n): ");
-                String answer = scanner.nextLine().trim().toLowerCase();
+                String answer = readLine(scanner).trim().toLowerCase();
                 if (answer.equals("n")) {
                     return;
                 }
@@ -200,7 +255,7 @@ public class Main {
             return;
         }
         System.out.print("Enter movie ID to remove: ");
-        String id = scanner.nextLine().trim().toUpperCase();
+        String id = readLine(scanner).trim().toUpperCase();
         Movie movie = library.getMovieById(id);
         if (user.removeFromWatchlist(id)) {
             if (movie != null) {
@@ -223,17 +278,18 @@ public class Main {
         for (String id : items) {
             Movie movie = library.getMovieById(id);
             if (movie != null) {
-                System.out.println(movie.shortDescription());
+                LISTING.movie(movie).newline();
             } else {
-                System.out.println(id);
+                LISTING.text(id).newline();
             }
         }
+        LISTING.flush();
     }
 
     // Mark watched with today's date and auto-remove from watchlist.
     private static void markMovieAsWatched(Scanner scanner, User user, MovieLibrary library) {
         System.out.print("Enter movie ID watched: ");
-        String id = scanner.nextLine().trim().toUpperCase();
+        String id = readLine(scanner).trim().toUpperCase();
         Movie movie = library.getMovieById(id);
         if (movie == null) {
             System.out.println("Movie not found.");
@@ -247,25 +303,48 @@ public class Main {
         System.out.println("Marked " + movie.getTitle() + " (" + movie.getYear() + ") as watched on " + date + ".");
     }
 
-    private static void viewHistory(User user, MovieLibrary library) {
-        ArrayList<History> entries = user.getHistory().getEntries();
-        if (entries.isEmpty()) {
+    // Paged history, newest first. Each page is read straight from the date index.
+    private static void viewHistory(Scanner scanner, User user, MovieLibrary library) {
+        HistoryLog history = user.getHistory();
+        if (history.size() == 0) {
             System.out.println("History is empty.");
             return;
         }
-        System.out.println("\n--- Viewing History ---");
-        for (History entry : entries) {
-            Movie movie = library.getMovieById(entry.getMovieId());
-            if (movie == null) {
-                System.out.println(entry.getMovieId() + " on " + entry.getWatchedDate());
+        int pages = history.pageCount(HISTORY_PAGE_SIZE);
+        int page = 0;
+        while (true) {
+            System.out.println("\n--- Viewing History (page " + (page + 1) + " of " + pages + ") ---");
+            for (History entry : history.page(page, HISTORY_PAGE_SIZE)) {
+                Movie movie = library.getMovieById(entry.getMovieId());
+                if (movie == null) {
+                    LISTING.text(entry.getMovieId());
+                } else {
+                    LISTING.movie(movie);
+                }
+                LISTING.text(" on ").text(entry.getWatchedDate()).newline();
+            }
+            LISTING.flush();
+            if (pages == 1) {
+                return;
+            }
+            System.out.print("n = next, p = previous, q = back: ");
+            String answer = readLine(scanner).trim().toLowerCase();
+            if (answer.equals("n") && page < pages - 1) {
+                page++;
+            } else if (answer.equals("p") && page > 0) {
+                page--;
+            } else if (answer.equals("q") || answer.isEmpty()) {
+                return;
+            } else if (answer.equals("n") || answer.equals("p")) {
+                System.out.println("No more pages in that direction.");
             } else {
-                System.out.println(movie.shortDescription() + " on " + entry.getWatchedDate());
+                System.out.println("Please enter n, p or q.");
             }
         }
     }
 
     // Interactive recommendation flow: choose genre, sort mode, count.
-    private static void getRecommendations(Scanner scanner, User user, MovieLibrary library, RecommendationEngine engine) {
+    private static void getRecommendations(Scanner scanner, User user, MovieLibrary library, RecommendationEngine engine, SplittableRandom sessionRandom) {
         ArrayList<String> genres = engine.listGenres(library);
         System.out.println("\n--- Choose Genre ---");
         for (int i = 0; i < genres.size(); i++) {
@@ -276,7 +355,7 @@ public class Main {
         String genreFilter;
         while (true) {
             System.out.print("Enter choice: ");
-            String genreChoiceText = scanner.nextLine().trim();
+            String genreChoiceText = readLine(scanner).trim();
             try {
                 int genreChoice = Integer.parseInt(genreChoiceText);
                 if (genreChoice >= 1 && genreChoice <= genres.size()) {
@@ -300,18 +379,20 @@ public class Main {
         System.out.println("3. Year new to old");
         System.out.println("4. Year old to new");
         System.out.println("5. Random");
+        System.out.println("6. Trending");
+        System.out.println("7. More like what I've watched");
 
         int sortChoice;
         while (true) {
 
             System.out.print("Enter choice: ");
-            String sortChoiceText = scanner.nextLine().trim();
+            String sortChoiceText = readLine(scanner).trim();
             try {
                 sortChoice = Integer.parseInt(sortChoiceText);
-                if (sortChoice >= 1 && sortChoice <= 5) {
+                if (sortChoice >= 1 && sortChoice <= 7) {
                     break;
                 } else {
-                    System.out.println("Please enter a number between 1 and 5.");
+                    System.out.println("Please enter a number between 1 and 7.");
                 }
 
             } catch (NumberFormatException e) {
@@ -324,7 +405,7 @@ public class Main {
         int number;
         while (true) {
             System.out.print("How many recommendations? (max 10): ");
-            String text = scanner.nextLine().trim();
+            String text = readLine(scanner).trim();
 
             try {
                 number = Integer.parseInt(text);
@@ -338,7 +419,18 @@ public class Main {
             }
         }
 
-        ArrayList<Movie> recs = engine.recommend(user, library, genreFilter, sortMode, number);
+        long started = System.nanoTime();
+        ArrayList<Movie> recs;
+        if (sortMode.equals(RecommendationEngine.MODE_RANDOM) && sessionRandom != null) {
+            recs = engine.recommendRandom(user, library, genreFilter, number, sessionRandom);
+        } else {
+            recs = engine.recommend(user, library, genreFilter, sortMode, number);
+        }
+        if (!firstRecommendationTimed) {
+            // Only the engine call: no prompts or typing inside, and a cold JIT shows up here.
+            firstRecommendationTimed = true;
+            reportStartup("startup.firstRecommend", "First recommendation", System.nanoTime() - started);
+        }
         if (recs.isEmpty()) {
             System.out.println("No recommendations available.");
             return;
@@ -347,40 +439,140 @@ public class Main {
 
         for (int i = 0; i < recs.size(); i++) {
             Movie movie = recs.get(i);
-            System.out.println((i + 1) + ". " + movie.shortDescription());
+            LISTING.text((i + 1) + ". ").movie(movie).newline();
         }
+        LISTING.flush();
         System.out.println("Found " + recs.size() + " matching item(s).");
     }
 
     private static void changePassword(Scanner scanner, User user) {
         System.out.print("Enter current password: ");
-        String current = scanner.nextLine().trim();
-        if (!user.verifyPassword(current)) {
+        String current = readLine(scanner).trim();
+        PasswordHasher.Outcome outcome = user.checkPassword(current);
+        if (outcome == PasswordHasher.Outcome.BUSY) {
+            System.out.println("Password service is busy, please try again.");
+            return;
+        }
+        if (outcome != PasswordHasher.Outcome.MATCH) {
             System.out.println("Current password incorrect.");
             return;
         }
         System.out.print("Enter new password: ");
-        String newPass = scanner.nextLine().trim();
+        String newPass = readLine(scanner).trim();
         if (newPass.length() < 5 || newPass.length() > 14) {
             System.out.println("Password length must be between 5 and 14 characters.");
             return;
         }
         System.out.print("Confirm new password: ");
-        String confirm = scanner.nextLine().trim();
+        String confirm = readLine(scanner).trim();
         if (!newPass.equals(confirm)) {
             System.out.println("Passwords do not match.");
             return;
         }
-        user.changePassword(newPass);
+        if (!user.changePassword(newPass)) {
+            System.out.println("Password service is busy, please try again.");
+            return;
+        }
         System.out.println("Password updated.");
     }
 
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One-off startup timing, recorded as a metric and printed with --timing.
+    private static void reportStartup(String metric, String label, long elapsedNanos) {
+        Metrics.histogram(metric).record(elapsedNanos);
+        if (showTiming) {
+            System.out.println("[" + label + ": " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms]");
+        }
+    }
+
+    // Non-interactive "--export-json FILE [--with-credentials]" / "--import-json FILE". Returns
+    // true if one ran. Both stream users.csv row by row instead of loading it. Exports carry no
+    // passwords unless --with-credentials is given, and then only hashed ones.
+    private static boolean runDataCommand(String[] args, UserStorage storage) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--export-json")) {
+                long count = new UserJsonLines().exportUsers(storage, USER_FILE, args[i + 1], hasFlag(args, "--with-credentials"));
+                if (count >= 0) {
+                    System.out.println("Exported " + count + " user(s) to " + args[i + 1] + ".");
+                }
+                return true;
+            }
+            if (args[i].equals("--import-json")) {
+                // Imported users replace existing users with the same name.
+                long count = new UserJsonLines().mergeIntoCsv(storage, args[i + 1], USER_FILE);
+                if (count >= 0) {
+                    System.out.println("Imported " + count + " user(s) from " + args[i + 1] + ".");
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // "--seed N" makes random recommendations repeat exactly across runs.
+    private static SplittableRandom parseSeed(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--seed")) {
+                try {
+                    return new SplittableRandom(Long.parseLong(args[i + 1]));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid seed: " + args[i + 1]);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Every prompt reads through here so the time spent waiting for the user is tracked.
+    private static String readLine(Scanner scanner) {
+        long start = System.nanoTime();
+        String line = scanner.nextLine();
+        inputWaitNanos += System.nanoTime() - start;
+        return line;
+    }
+
+    // Metric names for menu commands. Time spent waiting in readLine is not counted.
+    private static String guestCommandName(String choice) {
+        return switch (choice) {
+            case "1" -> "menu.login";
+            case "2" -> "menu.createAccount";
+            case "3" -> "menu.exit";
+            default -> "menu.invalid";
+        };
+    }
+
+    private static String userCommandName(String choice) {
+        return switch (choice) {
+            case "1" -> "menu.browseMovies";
+            case "2" -> "menu.addToWatchlist";
+            case "3" -> "menu.removeFromWatchlist";
+            case "4" -> "menu.viewWatchlist";
+            case "5" -> "menu.markWatched";
+            case "6" -> "menu.viewHistory";
+            case "7" -> "menu.recommend";
+            case "8" -> "menu.changePassword";
+            case "9" -> "menu.logout";
+            case "10" -> "menu.exit";
+            default -> "menu.invalid";
+        };
+    }
+
     private static String chooseSortMode(int choice) {
         return switch (choice) {
             case 2 -> RecommendationEngine.MODE_RATING_ASC;
             case 3 -> RecommendationEngine.MODE_YEAR_DESC;
             case 4 -> RecommendationEngine.MODE_YEAR_ASC;
             case 5 -> RecommendationEngine.MODE_RANDOM;
+            case 6 -> RecommendationEngine.MODE_TRENDING;
+            case 7 -> RecommendationEngine.MODE_SIMILAR;
             default -> RecommendationEngine.MODE_RATING_DESC;
         };
     }
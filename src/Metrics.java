@@ -0,0 +1,170 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Process-wide counters and latency histograms per operation name.
+// Usage: long start = Metrics.start(); ... Metrics.record("op", start);
+public class Metrics implements MetricsMBean {
+    private static final Metrics INSTANCE = new Metrics();
+    private static final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    // Set on threads whose calls should not count, such as the startup warm-up.
+    private static final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void record(String operation, long startNanos) {
+        if (muted.get()) {
+            return;
+        }
+        histogram(operation).record(System.nanoTime() - startNanos);
+    }
+
+    public static void recordError(String operation) {
+        if (muted.get()) {
+            return;
+        }
+        LongAdder counter = errors.get(operation);
+        if (counter == null) {
+            counter = errors.computeIfAbsent(operation, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    // Stop (or resume) recording for calls made on the current thread.
+    public static void setMutedOnCurrentThread(boolean mute) {
+        muted.set(mute);
+    }
+
+    public static LatencyHistogram histogram(String operation) {
+        LatencyHistogram histogram = latencies.get(operation);
+        if (histogram == null) {
+            histogram = latencies.computeIfAbsent(operation, k -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    // Register under "mms:type=Metrics" so jconsole/jcmd can read the numbers.
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("mms:type=Metrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Unable to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Rewrite the report to path every periodSeconds on a daemon thread.
+    public static synchronized void startPeriodicDump(String path, long periodSeconds) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(path), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static void dump(String path) {
+        try (PrintWriter writer = new PrintWriter(path)) {
+            writer.print(report());
+        } catch (FileNotFoundException e) {
+            System.out.println("Unable to write metrics: " + e.getMessage());
+        }
+    }
+
+    public static String report() {
+        StringBuilder out = new StringBuilder("operation,count,errors,mean_us,p50_us,p99_us,p999_us,max_us\n");
+        for (String name : sortedNames()) {
+            LatencyHistogram h = histogram(name);
+            out.append(name).append(',')
+                    .append(h.getCount()).append(',')
+                    .append(errorCount(name)).append(',')
+                    .append(micros(h.getMean())).append(',')
+                    .append(micros(h.getPercentile(50))).append(',')
+                    .append(micros(h.getPercentile(99))).append(',')
+                    .append(micros(h.getPercentile(99.9))).append(',')
+                    .append(micros(h.getMax())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static ArrayList<String> sortedNames() {
+        ArrayList<String> names = new ArrayList<>(latencies.keySet());
+        for (String name : errors.keySet()) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    private static long errorCount(String operation) {
+        LongAdder counter = errors.get(operation);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    @Override
+    public String[] getOperationNames() {
+        return sortedNames().toArray(new String[0]);
+    }
+
+    @Override
+    public long getCount(String operation) {
+        LatencyHistogram h = latencies.get(operation);
+        return h == null ? 0 : h.getCount();
+    }
+
+    @Override
+    public long getErrorCount(String operation) {
+        return errorCount(operation);
+    }
+
+    @Override
+    public double getP50Micros(String operation) {
+        return percentileMicros(operation, 50);
+    }
+
+    @Override
+    public double getP99Micros(String operation) {
+        return percentileMicros(operation, 99);
+    }
+
+    @Override
+    public double getP999Micros(String operation) {
+        return percentileMicros(operation, 99.9);
+    }
+
+    @Override
+    public String getReport() {
+        return report();
+    }
+
+    private static double percentileMicros(String operation, double percentile) {
+        LatencyHistogram h = latencies.get(operation);
+        return h == null ? 0 : micros(h.getPercentile(percentile));
+    }
+}
@@ -0,0 +1,17 @@
+// JMX view of the runtime metrics (see Metrics).
+public interface MetricsMBean {
+    String[] getOperationNames();
+
+    long getCount(String operation);
+
+    long getErrorCount(String operation);
+
+    double getP50Micros(String operation);
+
+    double getP99Micros(String operation);
+
+    double getP999Micros(String operation);
+
+    // Full text report, same as the periodic file dump.
+    String getReport();
+}
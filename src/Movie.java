@@ -1,3 +1,5 @@
+import java.nio.charset.Charset;
+
 // Represents one movie record loaded from CSV.
 public class Movie {
     private final String id;
@@ -5,6 +7,9 @@ public class Movie {
     private final String genre;
     private final int year;
     private final double rating;
+    // Built on first use; Movie is immutable so a racing rebuild gives the same value.
+    private String description;
+    private EncodedDescription encodedDescription;
 
     public Movie(String id, String title, String genre, int year, double rating) {
         this.id = id;
@@ -36,6 +41,32 @@ public class Movie {
 
     // Compact output used in menus.
     public String shortDescription() {
-        return id + " - " + title + " (" + genre + ", " + year + ") rating: " + rating;
+        String text = description;
+        if (text == null) {
+            text = id + " - " + title + " (" + genre + ", " + year + ") rating: " + rating;
+            description = text;
+        }
+        return text;
+    }
+
+    // shortDescription() encoded in the given charset. The bytes are cached for the charset
+    // asked for last (normally the console's) and must not be modified by the caller.
+    public byte[] descriptionBytes(Charset charset) {
+        EncodedDescription encoded = encodedDescription;
+        if (encoded == null || !encoded.charset.equals(charset)) {
+            encoded = new EncodedDescription(charset, shortDescription().getBytes(charset));
+            encodedDescription = encoded;
+        }
+        return encoded.bytes;
+    }
+
+    private static final class EncodedDescription {
+        private final Charset charset;
+        private final byte[] bytes;
+
+        private EncodedDescription(Charset charset, byte[] bytes) {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
     }
 }
@@ -1,20 +1,41 @@
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Scanner;
 
 // Loads movie data from CSV and provides lookup by id.
+// A library is a view over a CatalogRegistry: it keeps references to shared Movie records plus
+// ordinal <-> position arrays, so catalogs that share a registry do not copy each other's data
+// (including the similarity feature matrix, which lives in the registry).
 public class MovieLibrary {
+    private final CatalogRegistry registry;
     private final ArrayList<Movie> movies;
-    private final HashMap<String, Movie> movieMap;
+    // positions[ordinal] is the index in movies of that registry record, or -1 if not in this view.
+    private int[] positions;
+    // ordinals[i] is the registry ordinal of movies.get(i); used to read the shared feature matrix.
+    private int[] ordinals;
 
     public MovieLibrary() {
+        this(new CatalogRegistry());
+    }
+
+    // Library that shares Movie records with every other library on the same registry.
+    public MovieLibrary(CatalogRegistry registry) {
+        this.registry = registry;
         movies = new ArrayList<>();
-        movieMap = new HashMap<>();
+        positions = new int[0];
+        ordinals = new int[0];
     }
 
     public boolean loadFromFile(String path) {
+        long start = Metrics.start();
+        boolean loaded = readFile(path);
+        Metrics.record("library.loadFromFile", start);
+        return loaded;
+    }
+
+    private boolean readFile(String path) {
         try {
             File file = new File(path);
             Scanner input = new Scanner(file);
@@ -32,13 +53,23 @@ public class MovieLibrary {
                 String genre = parts[2].trim();
                 int year = safeParseInt(parts[3].trim());
                 double rating = safeParseDouble(parts[4].trim());
-                Movie movie = new Movie(id, title, genre, year, rating);
-                movies.add(movie);
-                movieMap.put(id, movie);
+                int ordinal = registry.intern(id, title, genre, year, rating);
+                if (ordinal >= positions.length) {
+                    int oldLength = positions.length;
+                    positions = Arrays.copyOf(positions, Math.max(ordinal + 1, oldLength * 2));
+                    Arrays.fill(positions, oldLength, positions.length, -1);
+                }
+                movies.add(registry.getMovie(ordinal));
+                positions[ordinal] = movies.size() - 1;
+                if (movies.size() > ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, Math.max(16, ordinals.length * 2));
+                }
+                ordinals[movies.size() - 1] = ordinal;
             }
             input.close();
             return true;
         } catch (FileNotFoundException e) {
+            Metrics.recordError("library.loadFromFile");
             System.out.println("Movies file not found: " + path);
             return false;
         }
@@ -60,15 +91,97 @@ public class MovieLibrary {
         }
     }
 
+    // Unit-length average of the watched movies' feature rows, or null if none are in the catalog.
+    public float[] profileOf(ArrayList<History> entries) {
+        CatalogRegistry.FeatureMatrix matrix = registry.getFeatures();
+        float[] values = matrix.getValues();
+        int rows = matrix.getRows();
+        float[] profile = new float[matrix.getFeatureCount()];
+        int found = 0;
+        for (History entry : entries) {
+            int index = positionOf(canonicalId(entry.getMovieId()));
+            if (index < 0) {
+                continue;
+            }
+            int ordinal = ordinals[index];
+            for (int f = 0; f < profile.length; f++) {
+                profile[f] += values[f * rows + ordinal];
+            }
+            found++;
+        }
+        if (found == 0) {
+            return null;
+        }
+        float norm = 0f;
+        for (float value : profile) {
+            norm += value * value;
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int f = 0; f < profile.length; f++) {
+            profile[f] /= norm;
+        }
+        return profile;
+    }
+
+    // Cosine similarity of every movie to the profile, indexed like getAllMovies().
+    // Scores the shared pool column by column (contiguous, so the JIT turns it into SIMD code),
+    // then picks out this view's movies through the ordinal array.
+    public float[] similarityTo(float[] profile) {
+        CatalogRegistry.FeatureMatrix matrix = registry.getFeatures();
+        float[] values = matrix.getValues();
+        int rows = matrix.getRows();
+        float[] poolScores = new float[rows];
+        int featureCount = Math.min(profile.length, matrix.getFeatureCount());
+        for (int f = 0; f < featureCount; f++) {
+            float weight = profile[f];
+            if (weight == 0f) {
+                continue;
+            }
+            int base = f * rows;
+            for (int o = 0; o < rows; o++) {
+                poolScores[o] += values[base + o] * weight;
+            }
+        }
+        int count = movies.size();
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = poolScores[ordinals[i]];
+        }
+        return scores;
+    }
+
     public ArrayList<Movie> getAllMovies() {
         return movies;
     }
 
+    public CatalogRegistry getRegistry() {
+        return registry;
+    }
+
     public Movie getMovieById(String id) {
-        String key = id.toUpperCase();
-        if (movieMap.containsKey(key)) {
-            return movieMap.get(key);
+        int position = positionOf(canonicalId(id));
+        return position < 0 ? null : movies.get(position);
+    }
+
+    // IDs are stored upper-case. Most callers already pass that form, so only convert when needed.
+    private static String canonicalId(String id) {
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.isLowerCase(id.charAt(i))) {
+                return id.toUpperCase();
+            }
+        }
+        return id;
+    }
+
+    // Position in getAllMovies() of an upper-case id, or -1. If the view holds several
+    // records with the same id, the one loaded last wins.
+    private int positionOf(String key) {
+        int best = -1;
+        for (int ordinal : registry.ordinalsOf(key)) {
+            if (ordinal < positions.length && positions[ordinal] > best) {
+                best = positions[ordinal];
+            }
         }
-        return null;
+        return best;
     }
 }
@@ -0,0 +1,224 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// Salted PBKDF2 password hashes stored as "pbkdf2$iterations$salt$hash" (Base64 parts).
+// Hashing and verification run on a small bounded pool so a burst of logins or sign-ups cannot
+// take every thread, and a successful check is remembered for a few minutes so repeat logins
+// skip the KDF.
+// Stored values without the prefix are legacy plaintext and still verify until migrated.
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    // Tunable with -Dmms.pbkdf2.iterations=N; existing hashes keep their own count.
+    private static final int ITERATIONS = Integer.getInteger("mms.pbkdf2.iterations", 120_000);
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int CACHE_PURGE_SIZE = 10_000;
+    private static final long VERIFY_TIMEOUT_SECONDS = 10;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // Per-process key for the verified cache, so the cache never holds plain or reusable digests.
+    private static final byte[] CACHE_KEY = randomBytes(32);
+    private static final ConcurrentHashMap<String, VerifiedLogin> verified = new ConcurrentHashMap<>();
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    private PasswordHasher() {
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    // Hash a new password on the pool, like verify. Returns null if the pool was saturated
+    // (or the wait timed out) and nothing was hashed.
+    public static String hash(String password) {
+        Future<String> task = null;
+        try {
+            task = POOL.submit(() -> hashNow(password));
+            return task.get(VERIFY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            return null;
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.out.println("Password hashing failed: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private static String hashNow(String password) {
+        byte[] salt = randomBytes(SALT_BYTES);
+        byte[] key = derive(password, salt, ITERATIONS);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + ITERATIONS + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(key);
+    }
+
+    // Check attempt against a stored value. A legacy plaintext value that matches is re-hashed
+    // on the pool in the same task, and the new hash is remembered for repeat logins.
+    // BUSY means the pool was saturated (or the wait timed out) and nothing was checked.
+    public static PasswordCheck verify(String stored, String attempt) {
+        byte[] tag = cacheTag(stored, attempt);
+        VerifiedLogin cached = verified.get(stored);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis() && MessageDigest.isEqual(cached.tag, tag)) {
+            return new PasswordCheck(Outcome.MATCH, null);
+        }
+        PasswordCheck result;
+        Future<PasswordCheck> task = null;
+        try {
+            task = POOL.submit(() -> {
+                if (!check(stored, attempt)) {
+                    return new PasswordCheck(Outcome.MISMATCH, null);
+                }
+                return new PasswordCheck(Outcome.MATCH, isHashed(stored) ? null : hashNow(attempt));
+            });
+            result = task.get(VERIFY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            return new PasswordCheck(Outcome.BUSY, null);
+        } catch (TimeoutException e) {
+            // Nobody will read the result, so free the worker (or the queue slot).
+            task.cancel(true);
+            return new PasswordCheck(Outcome.BUSY, null);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return new PasswordCheck(Outcome.BUSY, null);
+        } catch (ExecutionException e) {
+            System.out.println("Password check failed: " + e.getCause().getMessage());
+            return new PasswordCheck(Outcome.MISMATCH, null);
+        }
+        if (result.getOutcome() == Outcome.MATCH) {
+            if (result.getUpgradedHash() == null) {
+                remember(stored, tag);
+            } else {
+                forget(stored);
+                remember(result.getUpgradedHash(), cacheTag(result.getUpgradedHash(), attempt));
+            }
+        }
+        return result;
+    }
+
+    // Drop the cached check for a credential that is being replaced.
+    public static void forget(String stored) {
+        verified.remove(stored);
+    }
+
+    private static boolean check(String stored, String attempt) {
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), attempt.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(attempt, salt, iterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        }
+    }
+
+    private static byte[] cacheTag(String stored, String attempt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(CACHE_KEY, "HmacSHA256"));
+            mac.update(stored.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(attempt.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static void remember(String stored, byte[] tag) {
+        long now = System.currentTimeMillis();
+        if (verified.size() >= CACHE_PURGE_SIZE) {
+            verified.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        verified.put(stored, new VerifiedLogin(tag, now + CACHE_TTL_MILLIS));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    // One thread per core and a short queue; extra requests are rejected instead of piling up.
+    private static ThreadPoolExecutor createPool() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), runnable -> {
+                    Thread thread = new Thread(runnable, "password-verify");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public enum Outcome {
+        MATCH, MISMATCH, BUSY
+    }
+
+    // Result of verify: the outcome, plus the new stored value when a plaintext one was upgraded.
+    public static final class PasswordCheck {
+        private final Outcome outcome;
+        private final String upgradedHash;
+
+        private PasswordCheck(Outcome outcome, String upgradedHash) {
+            this.outcome = outcome;
+            this.upgradedHash = upgradedHash;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // Null unless the stored value was plaintext and has just been hashed.
+        public String getUpgradedHash() {
+            return upgradedHash;
+        }
+    }
+
+    private static final class VerifiedLogin {
+        private final byte[] tag;
+        private final long expiresAt;
+
+        private VerifiedLogin(byte[] tag, long expiresAt) {
+            this.tag = tag;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Global watch/watchlist counters across all users, plus 7-day and 30-day watch windows.
+// Counters are LongAdders so concurrent sessions do not fight over one value.
+public class PopularityStats {
+    public static final int WEEK_DAYS = 7;
+    public static final int MONTH_DAYS = 30;
+
+    private final ConcurrentHashMap<String, LongAdder> watchCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> watchlistCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> weekCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> monthCounts = new ConcurrentHashMap<>();
+    // Watch events per day (epoch day -> movie id -> count), kept until they leave the 30-day window.
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, LongAdder>> dayBuckets = new ConcurrentHashMap<>();
+    // Recording holds the read lock (many at once); rolling the window over holds the write lock.
+    private final ReentrantReadWriteLock windowLock = new ReentrantReadWriteLock();
+    private volatile long today;
+
+    public PopularityStats() {
+        today = LocalDate.now().toEpochDay();
+    }
+
+    // Rebuild all counters from loaded users and attach the stats to each user.
+    public static PopularityStats fromUsers(HashMap<String, User> users) {
+        PopularityStats stats = new PopularityStats();
+        for (User user : users.values()) {
+            for (String id : user.getWatchlist().getItems()) {
+                stats.recordWatchlistAdd(id);
+            }
+            for (History entry : user.getHistory().getEntries()) {
+                stats.recordWatch(entry.getMovieId(), entry.getWatchedDate(), null);
+            }
+            user.attachStats(stats);
+        }
+        return stats;
+    }
+
+    // A history keeps only the latest date per movie, so the windows count one watch per
+    // user and movie: previousDate is the date being replaced on a re-watch (null the first
+    // time), and its contribution is taken out. fromUsers rebuilds the same numbers.
+    public void recordWatch(String movieId, String date, String previousDate) {
+        String id = movieId.toUpperCase();
+        if (previousDate == null) {
+            counter(watchCounts, id).increment();
+        }
+        long day = parseDay(date);
+        long previousDay = previousDate == null ? Long.MIN_VALUE : parseDay(previousDate);
+        windowLock.readLock().lock();
+        try {
+            if (previousDay > today - MONTH_DAYS) {
+                ConcurrentHashMap<String, LongAdder> bucket = dayBuckets.get(previousDay);
+                if (bucket != null && bucket.containsKey(id)) {
+                    bucket.get(id).decrement();
+                    counter(monthCounts, id).decrement();
+                    if (previousDay > today - WEEK_DAYS) {
+                        counter(weekCounts, id).decrement();
+                    }
+                }
+            }
+            if (day <= today - MONTH_DAYS) {
+                return;
+            }
+            counter(dayBuckets.computeIfAbsent(day, d -> new ConcurrentHashMap<>()), id).increment();
+            counter(monthCounts, id).increment();
+            if (day > today - WEEK_DAYS) {
+                counter(weekCounts, id).increment();
+            }
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    public void recordWatchlistAdd(String movieId) {
+        counter(watchlistCounts, movieId.toUpperCase()).increment();
+    }
+
+    public void recordWatchlistRemove(String movieId) {
+        counter(watchlistCounts, movieId.toUpperCase()).decrement();
+    }
+
+    // Move the windows forward to the current date. Cheap when the day has not changed.
+    public void refresh() {
+        advanceTo(LocalDate.now().toEpochDay());
+    }
+
+    public void advanceTo(long newDay) {
+        if (newDay <= today) {
+            return;
+        }
+        windowLock.writeLock().lock();
+        try {
+            long oldDay = today;
+            if (newDay <= oldDay) {
+                return;
+            }
+            for (Map.Entry<Long, ConcurrentHashMap<String, LongAdder>> bucket : dayBuckets.entrySet()) {
+                long day = bucket.getKey();
+                if (day <= newDay - WEEK_DAYS && day > oldDay - WEEK_DAYS) {
+                    subtract(weekCounts, bucket.getValue());
+                }
+                if (day <= newDay - MONTH_DAYS) {
+                    subtract(monthCounts, bucket.getValue());
+                    dayBuckets.remove(day);
+                }
+            }
+            today = newDay;
+        } finally {
+            windowLock.writeLock().unlock();
+        }
+    }
+
+    public long getWatchCount(String movieId) {
+        return read(watchCounts, movieId);
+    }
+
+    public long getWatchlistCount(String movieId) {
+        return read(watchlistCounts, movieId);
+    }
+
+    public long getWeekCount(String movieId) {
+        return read(weekCounts, movieId);
+    }
+
+    public long getMonthCount(String movieId) {
+        return read(monthCounts, movieId);
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> map, String id) {
+        LongAdder adder = map.get(id);
+        if (adder == null) {
+            adder = map.computeIfAbsent(id, k -> new LongAdder());
+        }
+        return adder;
+    }
+
+    private static long read(ConcurrentHashMap<String, LongAdder> map, String movieId) {
+        LongAdder adder = map.get(movieId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private static void subtract(ConcurrentHashMap<String, LongAdder> window, ConcurrentHashMap<String, LongAdder> bucket) {
+        for (Map.Entry<String, LongAdder> entry : bucket.entrySet()) {
+            counter(window, entry.getKey()).add(-entry.getValue().sum());
+        }
+    }
+
+    private static long parseDay(String date) {
+        try {
+            return LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -1,4 +1,18 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.random.RandomGenerator;
 
 // Builds recommendation lists with genre filter and sort modes.
 public class RecommendationEngine {
@@ -7,9 +21,29 @@ public class RecommendationEngine {
     public static final String MODE_YEAR_DESC = "year_desc";
     public static final String MODE_YEAR_ASC = "year_asc";
     public static final String MODE_RANDOM = "random";
+    public static final String MODE_TRENDING = "trending";
+    public static final String MODE_SIMILAR = "similar";
+    private static final int BATCH_CHUNK_SIZE = 4096;
+
+    private final PopularityStats popularity;
+
+    public RecommendationEngine() {
+        this(new PopularityStats());
+    }
+
+    public RecommendationEngine(PopularityStats popularity) {
+        this.popularity = popularity;
+    }
 
     // Collect distinct genres from all movies, sorted alphabetically, used in Main.
     public ArrayList<String> listGenres(MovieLibrary library) {
+        long start = Metrics.start();
+        ArrayList<String> genres = collectGenres(library);
+        Metrics.record("engine.listGenres", start);
+        return genres;
+    }
+
+    private ArrayList<String> collectGenres(MovieLibrary library) {
         ArrayList<String> genres = new ArrayList<>();
         ArrayList<Movie> movies = library.getAllMovies();
         for (Movie movie : movies) {
@@ -24,14 +58,28 @@ public class RecommendationEngine {
 
     // Main entry: filter by genre (or ALL), exclude watched/watchlist, then sort.
     public ArrayList<Movie> recommend(User user, MovieLibrary library, String genreFilter, String sortMode, int n) {
-        boolean allGenres = genreFilter == null || genreFilter.isEmpty();
+        return timedRank(user, library, genreFilter, sortMode, n, ThreadLocalRandom.current());
+    }
+
+    // Every public recommendation call goes through here, so engine.recommend counts them all.
+    private ArrayList<Movie> timedRank(User user, MovieLibrary library, String genreFilter, String sortMode, int n, RandomGenerator random) {
+        long start = Metrics.start();
+        ArrayList<Movie> result = rank(user, library, genreFilter, sortMode, n, random);
+        Metrics.record("engine.recommend", start);
+        return result;
+    }
+
+    private ArrayList<Movie> rank(User user, MovieLibrary library, String genreFilter, String sortMode, int n, RandomGenerator random) {
+        if (sortMode.equals(MODE_RANDOM)) {
+            return sampleRandom(library.getAllMovies(), movie -> isCandidate(user, movie, genreFilter), n, random);
+        }
+        if (sortMode.equals(MODE_SIMILAR)) {
+            return similarTo(user, library, genreFilter, n);
+        }
         ArrayList<Movie> candidates = new ArrayList<>();
         ArrayList<Movie> all = library.getAllMovies();
         for (Movie movie : all) {
-            if (!allGenres && !movie.getGenre().equalsIgnoreCase(genreFilter)) {
-                continue;
-            }
-            if (!isExcluded(user, movie.getId())) {
+            if (isCandidate(user, movie, genreFilter)) {
                 candidates.add(movie);
             }
         }
@@ -40,7 +88,12 @@ public class RecommendationEngine {
             return candidates;
         }
 
-        sortMovies(candidates, sortMode);
+        if (sortMode.equals(MODE_TRENDING)) {
+            popularity.refresh();
+            sortByTrending(candidates);
+        } else {
+            candidates.sort(comparatorFor(sortMode));
+        }
 
         ArrayList<Movie> result = new ArrayList<>();   //top-n
         for (int i = 0; i < candidates.size() && result.size() < n; i++) {
@@ -49,64 +102,216 @@ public class RecommendationEngine {
         return result;
     }
 
-    // Selection sort on movies using the chosen comparison.
-    private void sortMovies(ArrayList<Movie> movies, String mode) {
-        for (int i = 0; i < movies.size(); i++) {
-            int targetIndex = i;
-            for (int j = i + 1; j < movies.size(); j++) {
-                if (better(movies.get(j), movies.get(targetIndex), mode)) {
-                    targetIndex = j;
+    // Offline job: top-n for every user and every config, written to one file.
+    // Each config's candidate ordering is built once and shared by all users; users are
+    // processed in parallel chunks so only one chunk of output is held in memory.
+    // Output: a CSV header "username,<config label>,...", then one row per user with one column per
+    // config, each column a ";"-separated list of movie ids.
+    public boolean recommendAll(HashMap<String, User> users, MovieLibrary library, List<BatchConfig> configs, int n, String outputPath) {
+        popularity.refresh();
+        ArrayList<Movie[]> orderings = new ArrayList<>();
+        for (BatchConfig config : configs) {
+            orderings.add(buildOrdering(library, config));
+        }
+        ArrayList<User> allUsers = new ArrayList<>(users.values());
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath), 1 << 16)) {
+            StringBuilder header = new StringBuilder("username");
+            for (BatchConfig config : configs) {
+                header.append(',').append(config.label());
+            }
+            writer.write(header.toString());
+            writer.newLine();
+            for (int start = 0; start < allUsers.size(); start += BATCH_CHUNK_SIZE) {
+                List<User> chunk = allUsers.subList(start, Math.min(start + BATCH_CHUNK_SIZE, allUsers.size()));
+                List<String> lines = chunk.parallelStream()
+                        .map(user -> batchLine(user, library, configs, orderings, n))
+                        .toList();
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
                 }
             }
-            Movie temp = movies.get(i);
-            movies.set(i, movies.get(targetIndex));
-            movies.set(targetIndex, temp);
+            return true;
+        } catch (IOException e) {
+            Metrics.recordError("engine.recommendAll");
+            System.out.println("Unable to write batch recommendations: " + e.getMessage());
+            return false;
         }
+    }
 
-        if (mode.equals(MODE_RANDOM)) {
-            shuffleMovies(movies);
+    // Genre-filtered catalog in the config's order. Random configs keep catalog order and sample per user;
+    // similar configs rank per user and fall back to this (rating) order when there is no history.
+    private Movie[] buildOrdering(MovieLibrary library, BatchConfig config) {
+        ArrayList<Movie> matching = new ArrayList<>();
+        String genreFilter = config.getGenreFilter();
+        boolean allGenres = genreFilter == null || genreFilter.isEmpty();
+        for (Movie movie : library.getAllMovies()) {
+            if (allGenres || movie.getGenre().equalsIgnoreCase(genreFilter)) {
+                matching.add(movie);
+            }
+        }
+        if (config.getSortMode().equals(MODE_TRENDING)) {
+            sortByTrending(matching);
+        } else if (!config.getSortMode().equals(MODE_RANDOM)) {
+            // Similar configs get the rating order here, used for users with no history.
+            matching.sort(comparatorFor(config.getSortMode()));
         }
+        return matching.toArray(new Movie[0]);
     }
 
-    // Decide if "current" should come before "target" under the given mode.
-    private boolean better(Movie current, Movie target, String mode) {
-        switch (mode) {
-            case MODE_RATING_ASC -> {
-                return current.getRating() < target.getRating();
+    private String batchLine(User user, MovieLibrary library, List<BatchConfig> configs, ArrayList<Movie[]> orderings, int n) {
+        // One set lookup per movie instead of scanning the watchlist and history lists.
+        HashSet<String> excluded = new HashSet<>(user.getWatchlist().getItems());
+        for (History entry : user.getHistory().getEntries()) {
+            excluded.add(entry.getMovieId());
+        }
+        StringBuilder line = new StringBuilder(user.getUsername()).append(',');
+        for (int c = 0; c < configs.size(); c++) {
+            if (c > 0) {
+                line.append(',');
             }
-            case MODE_YEAR_DESC -> {
-                if (current.getYear() > target.getYear()) {
-                    return true;
-                }
-                if (current.getYear() == target.getYear()) {
-                    return current.getRating() > target.getRating();
-                }
-                return false;
+            Movie[] ordering = orderings.get(c);
+            float[] profile = null;
+            if (configs.get(c).getSortMode().equals(MODE_SIMILAR)) {
+                profile = library.profileOf(user.getHistory().getEntries());
             }
-            case MODE_YEAR_ASC -> {
-                if (current.getYear() < target.getYear()) {
-                    return true;
+            if (profile != null) {
+                ArrayList<Movie> picks = topSimilar(library, profile, configs.get(c).getGenreFilter(), n, excluded::contains);
+                for (int i = 0; i < picks.size(); i++) {
+                    appendId(line, i, picks.get(i));
+                }
+            } else if (configs.get(c).getSortMode().equals(MODE_RANDOM)) {
+                ArrayList<Movie> picks = sampleRandom(Arrays.asList(ordering), movie -> !excluded.contains(movie.getId()), n,
+                        new SplittableRandom(user.getUsername().hashCode()));
+                for (int i = 0; i < picks.size(); i++) {
+                    appendId(line, i, picks.get(i));
                 }
-                if (current.getYear() == target.getYear()) {
-                    return current.getRating() > target.getRating();
+            } else {
+                int found = 0;
+                for (int i = 0; i < ordering.length && found < n; i++) {
+                    if (!excluded.contains(ordering[i].getId())) {
+                        appendId(line, found++, ordering[i]);
+                    }
                 }
-                return false;
             }
-            case MODE_RANDOM -> {
-                return false;
+        }
+        return line.toString();
+    }
+
+    private void appendId(StringBuilder line, int position, Movie movie) {
+        if (position > 0) {
+            line.append(';');
+        }
+        line.append(movie.getId());
+    }
+
+    // Last 7 days first, then last 30 days, all-time watchers, watchlist saves, then rating.
+    // The counters are read once per movie into a snapshot, so the sort does no map lookups
+    // and cannot see the counts change mid-sort.
+    private void sortByTrending(ArrayList<Movie> movies) {
+        HashMap<Movie, long[]> counts = new HashMap<>();
+        for (Movie movie : movies) {
+            String id = movie.getId();
+            counts.put(movie, new long[] {popularity.getWeekCount(id), popularity.getMonthCount(id),
+                    popularity.getWatchCount(id), popularity.getWatchlistCount(id)});
+        }
+        movies.sort(Comparator.comparingLong((Movie m) -> counts.get(m)[0]).reversed()
+                .thenComparing(Comparator.comparingLong((Movie m) -> counts.get(m)[1]).reversed())
+                .thenComparing(Comparator.comparingLong((Movie m) -> counts.get(m)[2]).reversed())
+                .thenComparing(Comparator.comparingLong((Movie m) -> counts.get(m)[3]).reversed())
+                .thenComparing(Comparator.comparingDouble(Movie::getRating).reversed()));
+    }
+
+    // Order for the fixed-field modes: rating, or year with rating as the tie-break. List.sort is
+    // stable, so equal movies keep catalog order in both the interactive and the batch lists.
+    private Comparator<Movie> comparatorFor(String mode) {
+        Comparator<Movie> byRatingDesc = Comparator.comparingDouble(Movie::getRating).reversed();
+        return switch (mode) {
+            case MODE_RATING_ASC -> Comparator.comparingDouble(Movie::getRating);
+            case MODE_YEAR_DESC -> Comparator.comparingInt(Movie::getYear).reversed().thenComparing(byRatingDesc);
+            case MODE_YEAR_ASC -> Comparator.comparingInt(Movie::getYear).thenComparing(byRatingDesc);
+            default -> byRatingDesc;
+        };
+    }
+
+    // "More like what I've watched": rank by cosine similarity to the user's history profile.
+    // Users with no history in the catalog get the rating order instead.
+    private ArrayList<Movie> similarTo(User user, MovieLibrary library, String genreFilter, int n) {
+        float[] profile = library.profileOf(user.getHistory().getEntries());
+        if (profile == null) {
+            return rank(user, library, genreFilter, MODE_RATING_DESC, n, null);
+        }
+        return topSimilar(library, profile, genreFilter, n, id -> isExcluded(user, id));
+    }
+
+    // Best n movies by similarity to profile, skipping excluded ids and other genres.
+    private ArrayList<Movie> topSimilar(MovieLibrary library, float[] profile, String genreFilter, int n, Predicate<String> excluded) {
+        boolean allGenres = genreFilter == null || genreFilter.isEmpty();
+        float[] scores = library.similarityTo(profile);
+        ArrayList<Movie> all = library.getAllMovies();
+        // Min-heap of the best n indexes seen so far.
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> Float.compare(scores[a], scores[b]));
+        for (int i = 0; i < all.size() && n > 0; i++) {
+            if (best.size() == n && scores[i] <= scores[best.peek()]) {
+                continue;
+            }
+            Movie movie = all.get(i);
+            if (!allGenres && !movie.getGenre().equalsIgnoreCase(genreFilter) || excluded.test(movie.getId())) {
+                continue;
+            }
+            best.add(i);
+            if (best.size() > n) {
+                best.poll();
             }
         }
-        return current.getRating() > target.getRating();
+        ArrayList<Movie> result = new ArrayList<>();
+        while (!best.isEmpty()) {
+            result.add(all.get(best.poll()));
+        }
+        Collections.reverse(result);
+        return result;
     }
 
-    // Fisher-Yates shuffle for random order.
-    private void shuffleMovies(ArrayList<Movie> movies) {
-        for (int i = movies.size() - 1; i > 0; i--) {
-            int j = (int) (Math.random() * (i + 1));
-            Movie temp = movies.get(i);
-            movies.set(i, movies.get(j));
-            movies.set(j, temp);
+    // Random picks that can be replayed: the same seed and data give the same list.
+    public ArrayList<Movie> recommendRandom(User user, MovieLibrary library, String genreFilter, int n, long seed) {
+        return timedRank(user, library, genreFilter, MODE_RANDOM, n, new SplittableRandom(seed));
+    }
+
+    // Same, drawing from a caller-owned generator (e.g. one seeded per session).
+    public ArrayList<Movie> recommendRandom(User user, MovieLibrary library, String genreFilter, int n, RandomGenerator random) {
+        return timedRank(user, library, genreFilter, MODE_RANDOM, n, random);
+    }
+
+    // Reservoir sampling in one pass over the movies that pass the filter: no sort, only n slots
+    // kept. Used by both the interactive and the batch path.
+    private ArrayList<Movie> sampleRandom(List<Movie> movies, Predicate<Movie> candidate, int n, RandomGenerator random) {
+        ArrayList<Movie> reservoir = new ArrayList<>();
+        if (n <= 0) {
+            return reservoir;
         }
+        int seen = 0;
+        for (Movie movie : movies) {
+            if (!candidate.test(movie)) {
+                continue;
+            }
+            if (seen < n) {
+                reservoir.add(movie);
+            } else {
+                int j = random.nextInt(seen + 1);
+                if (j < n) {
+                    reservoir.set(j, movie);
+                }
+            }
+            seen++;
+        }
+        // The reservoir keeps catalog order for early picks, so shuffle the n kept items.
+        for (int i = reservoir.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Movie temp = reservoir.get(i);
+            reservoir.set(i, reservoir.get(j));
+            reservoir.set(j, temp);
+        }
+        return reservoir;
     }
 
     // Selection sort for strings (case-insensitive).
@@ -133,6 +338,14 @@ public class RecommendationEngine {
         return false;
     }
 
+    private boolean isCandidate(User user, Movie movie, String genreFilter) {
+        boolean allGenres = genreFilter == null || genreFilter.isEmpty();
+        if (!allGenres && !movie.getGenre().equalsIgnoreCase(genreFilter)) {
+            return false;
+        }
+        return !isExcluded(user, movie.getId());
+    }
+
     private boolean isExcluded(User user, String movieId) {
         if (user.getWatchlist().contains(movieId)) {
             return true;
@@ -1,9 +1,10 @@
 // Represents one user with credentials and personal lists.
 public class User {
     private final String username;
-    private String password;
+    private volatile String password;  // PBKDF2 hash, or plaintext until migrated
     private final Watchlist watchlist;
     private final HistoryLog history;
+    private PopularityStats stats;
 
     public User(String username, String password, Watchlist watchlist, HistoryLog history) {
         this.username = username;
@@ -16,12 +17,32 @@ public class User {
         return username;
     }
 
+    // Plaintext passwords left from older users.csv files are re-hashed on the first successful check.
+    public PasswordHasher.Outcome checkPassword(String attempt) {
+        PasswordHasher.PasswordCheck check = PasswordHasher.verify(password, attempt);
+        if (check.getUpgradedHash() != null) {
+            password = check.getUpgradedHash();
+        }
+        return check.getOutcome();
+    }
+
     public boolean verifyPassword(String attempt) {
-        return password.equals(attempt);
+        return checkPassword(attempt) == PasswordHasher.Outcome.MATCH;
     }
 
-    public void changePassword(String newPassword) {
-        password = newPassword;
+    public boolean hasHashedPassword() {
+        return PasswordHasher.isHashed(password);
+    }
+
+    // Returns false if the password service was busy and nothing changed.
+    public boolean changePassword(String newPassword) {
+        String hashed = PasswordHasher.hash(newPassword);
+        if (hashed == null) {
+            return false;
+        }
+        PasswordHasher.forget(password);
+        password = hashed;
+        return true;
     }
 
     public Watchlist getWatchlist() {
@@ -32,12 +53,25 @@ public class User {
         return history;
     }
 
+    // Global counters to keep in step with this user's changes (may be null).
+    public void attachStats(PopularityStats stats) {
+        this.stats = stats;
+    }
+
     public void addToWatchlist(String movieId) {
+        boolean added = !watchlist.contains(movieId);
         watchlist.add(movieId);
+        if (added && stats != null) {
+            stats.recordWatchlistAdd(movieId);
+        }
     }
 
     public boolean removeFromWatchlist(String movieId) {
-        return watchlist.remove(movieId);
+        boolean removed = watchlist.remove(movieId);
+        if (removed && stats != null) {
+            stats.recordWatchlistRemove(movieId);
+        }
+        return removed;
     }
 
     public boolean hasWatched(String movieId) {
@@ -47,9 +81,13 @@ public class User {
     // Add to history and remove from watchlist if present.
     public void markWatched(String movieId, String date) {
         String id = movieId.toUpperCase();
+        String previousDate = history.getWatchedDate(id);
         history.addEntry(id, date);
+        if (stats != null) {
+            stats.recordWatch(id, date, previousDate);
+        }
         if (watchlist.contains(id)) {
-            watchlist.remove(id);
+            removeFromWatchlist(id);
         }
     }
 
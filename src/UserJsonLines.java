@@ -0,0 +1,406 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+// Streams users to and from JSON Lines, one user per line:
+// {"username":"bob","watchlist":["M1"],"history":[{"id":"M2","date":"2024-05-01"}]}
+// Credentials are left out unless asked for, and even then only PBKDF2 hashes are written as
+// "password"; plaintext passwords never leave users.csv. Both directions go through a fixed-size
+// buffer and handle one user at a time; users.csv is read and written row by row through
+// UserStorage, never loaded as a whole.
+public class UserJsonLines {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Stream users.csv to JSON Lines row by row. Returns the number written, or -1 on failure.
+    public long exportUsers(UserStorage storage, String csvPath, String jsonPath, boolean withCredentials) {
+        long[] written = {0};
+        long[] withoutHash = {0};
+        StringBuilder line = new StringBuilder();
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(jsonPath), StandardCharsets.UTF_8), BUFFER_SIZE))) {
+            boolean read = storage.forEachUser(csvPath, user -> {
+                line.setLength(0);
+                boolean hashed = PasswordHasher.isHashed(user.getPassword());
+                appendUser(line, user, withCredentials && hashed);
+                writer.append(line).append('\n');
+                written[0]++;
+                if (withCredentials && !hashed) {
+                    withoutHash[0]++;
+                }
+            });
+            if (!read || writer.checkError()) {
+                Metrics.recordError("storage.exportJson");
+                System.out.println("Unable to export users to " + jsonPath + ".");
+                return -1;
+            }
+            if (withoutHash[0] > 0) {
+                System.out.println(withoutHash[0] + " user(s) exported without a password: not yet migrated to a hash.");
+            }
+            return written[0];
+        } catch (IOException e) {
+            Metrics.recordError("storage.exportJson");
+            System.out.println("Unable to export users: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // Merge a JSON Lines file into users.csv without loading either file whole. Imported users
+    // are written to a temp file as they are read, then existing rows for other usernames are
+    // copied after them, and the temp file replaces users.csv. Only usernames and the existing
+    // passwords are kept in memory. A user exported without credentials keeps the password
+    // already in users.csv; a new user without one could never log in and is skipped, as are
+    // users that users.csv cannot represent and repeated usernames. Returns the number
+    // imported, or -1 on failure (users.csv untouched).
+    public long mergeIntoCsv(UserStorage storage, String jsonPath, String csvPath) {
+        File target = new File(csvPath);
+        File temp = new File(csvPath + ".importing");
+        HashMap<String, String> existingPasswords = new HashMap<>();
+        if (target.exists() && !storage.forEachUser(csvPath, user -> existingPasswords.put(user.getUsername(), user.getPassword()))) {
+            return -1;
+        }
+        HashSet<String> imported = new HashSet<>();
+        boolean ok;
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp), BUFFER_SIZE))) {
+            writer.println(UserStorage.HEADER);
+            long read = importUsers(jsonPath, user -> {
+                if (user.getPassword() == null) {
+                    String existing = existingPasswords.get(user.getUsername());
+                    if (existing == null) {
+                        System.out.println("Skipping user \"" + user.getUsername() + "\": no password and no existing account.");
+                        return;
+                    }
+                    user = new User(user.getUsername(), existing, user.getWatchlist(), user.getHistory());
+                }
+                String problem = storage.checkRepresentable(user);
+                if (problem != null) {
+                    Metrics.recordError("storage.importJson");
+                    System.out.println("Skipping user \"" + user.getUsername() + "\": " + problem + ".");
+                } else if (!imported.add(user.getUsername())) {
+                    System.out.println("Skipping user \"" + user.getUsername() + "\": already imported earlier in the file.");
+                } else {
+                    writer.println(storage.formatRow(user));
+                }
+            });
+            ok = read >= 0;
+            if (ok && target.exists()) {
+                ok = storage.forEachUser(csvPath, user -> {
+                    if (!imported.contains(user.getUsername())) {
+                        writer.println(storage.formatRow(user));
+                    }
+                });
+            }
+            ok = ok && !writer.checkError();
+        } catch (IOException e) {
+            Metrics.recordError("storage.importJson");
+            System.out.println("Unable to import users: " + e.getMessage());
+            ok = false;
+        }
+        if (!ok) {
+            temp.delete();
+            return -1;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Metrics.recordError("storage.importJson");
+            System.out.println("Unable to replace " + csvPath + ": " + e.getMessage());
+            temp.delete();
+            return -1;
+        }
+        return imported.size();
+    }
+
+    // Read users one line at a time and hand each to the consumer. Bad lines are reported and skipped.
+    public long importUsers(String path, Consumer<User> consumer) {
+        long read = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    User user = parseUser(line);
+                    if (user == null) {
+                        System.out.println("Skipping line " + lineNumber + ": missing username.");
+                        continue;
+                    }
+                    consumer.accept(user);
+                    read++;
+                } catch (IllegalArgumentException e) {
+                    Metrics.recordError("storage.importJson");
+                    System.out.println("Skipping line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            return read;
+        } catch (IOException e) {
+            Metrics.recordError("storage.importJson");
+            System.out.println("Unable to import users: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private void appendUser(StringBuilder out, User user, boolean withPassword) {
+        out.append("{\"username\":");
+        appendString(out, user.getUsername());
+        if (withPassword) {
+            out.append(",\"password\":");
+            appendString(out, user.getPassword());
+        }
+        out.append(",\"watchlist\":[");
+        ArrayList<String> items = user.getWatchlist().getItems();
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendString(out, items.get(i));
+        }
+        out.append("],\"history\":[");
+        ArrayList<History> entries = user.getHistory().getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"id\":");
+            appendString(out, entries.get(i).getMovieId());
+            out.append(",\"date\":");
+            appendString(out, entries.get(i).getWatchedDate());
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    private void appendString(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    @SuppressWarnings("unchecked")
+    private User parseUser(String line) {
+        JsonReader reader = new JsonReader(line);
+        Object value = reader.readValue();
+        reader.expectEnd();
+        if (!(value instanceof HashMap)) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        HashMap<String, Object> fields = (HashMap<String, Object>) value;
+        Object username = fields.get("username");
+        Object password = fields.get("password");
+        if (!(username instanceof String) || ((String) username).isEmpty()) {
+            return null;
+        }
+        if (password != null && !(password instanceof String)) {
+            throw new IllegalArgumentException("password must be a string");
+        }
+        ArrayList<String> watchlistItems = new ArrayList<>();
+        if (fields.get("watchlist") instanceof ArrayList) {
+            for (Object item : (ArrayList<Object>) fields.get("watchlist")) {
+                if (item instanceof String) {
+                    watchlistItems.add(((String) item).toUpperCase());
+                }
+            }
+        }
+        ArrayList<History> historyEntries = new ArrayList<>();
+        if (fields.get("history") instanceof ArrayList) {
+            for (Object item : (ArrayList<Object>) fields.get("history")) {
+                if (item instanceof HashMap) {
+                    HashMap<String, Object> entry = (HashMap<String, Object>) item;
+                    if (entry.get("id") instanceof String) {
+                        Object date = entry.get("date");
+                        historyEntries.add(new History(((String) entry.get("id")).toUpperCase(), date instanceof String ? (String) date : ""));
+                    }
+                }
+            }
+        }
+        return new User((String) username, (String) password, new Watchlist(watchlistItems), new HistoryLog(historyEntries));
+    }
+
+    // Minimal JSON reader for one line: objects become HashMap, arrays ArrayList, strings String,
+    // numbers/true/false their text, null null. Throws IllegalArgumentException on bad input.
+    private static final class JsonReader {
+        private final String text;
+        private int pos;
+
+        private JsonReader(String text) {
+            this.text = text;
+        }
+
+        private Object readValue() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("unexpected end of line");
+            }
+            char c = text.charAt(pos);
+            if (c == '{') {
+                return readObject();
+            }
+            if (c == '[') {
+                return readArray();
+            }
+            if (c == '"') {
+                return readString();
+            }
+            return readLiteral();
+        }
+
+        private HashMap<String, Object> readObject() {
+            HashMap<String, Object> object = new HashMap<>();
+            pos++;
+            skipSpaces();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipSpaces();
+                if (peek() != '"') {
+                    throw error("expected a field name");
+                }
+                String key = readString();
+                skipSpaces();
+                expect(':');
+                object.put(key, readValue());
+                skipSpaces();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private ArrayList<Object> readArray() {
+            ArrayList<Object> array = new ArrayList<>();
+            pos++;
+            skipSpaces();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipSpaces();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String readString() {
+            pos++;
+            StringBuilder out = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("bad unicode escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> out.append(escape);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private String readLiteral() {
+            int start = pos;
+            while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw error("unexpected character");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private void expectEnd() {
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("trailing characters");
+            }
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+}
@@ -4,16 +4,35 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Scanner;
+import java.util.function.Consumer;
 
-// Loads and saves users.csv (username,password,watchlist,history).
+// Loads and saves users.csv (username,password,watchlist,history). The password column holds
+// a PasswordHasher value; old plaintext rows are migrated when the user next logs in.
 public class UserStorage {
+    public static final String HEADER = "username,password,watchlist,history";
+
     public HashMap<String, User> loadUsers(String path) {
+        long start = Metrics.start();
+        HashMap<String, User> users = readUsers(path);
+        Metrics.record("storage.loadUsers", start);
+        return users;
+    }
+
+    private HashMap<String, User> readUsers(String path) {
         HashMap<String, User> users = new HashMap<>();
+        if (!forEachUser(path, user -> users.put(user.getUsername(), user))) {
+            Metrics.recordError("storage.loadUsers");
+        }
+        return users;
+    }
+
+    // Parse users.csv one row at a time without keeping earlier rows. Returns false if the file can't be read.
+    public boolean forEachUser(String path, Consumer<User> consumer) {
         try {
             File file = new File(path);
             if (!file.exists()) {
                 System.out.println("User file not found: " + path);
-                return users;
+                return false;
             }
             Scanner scanner = new Scanner(file);
             if (scanner.hasNextLine()) {
@@ -31,14 +50,14 @@ public class UserStorage {
                 ArrayList<History> historyEntries = parseHistory(parts[3]);
                 Watchlist watchlist = new Watchlist(watchlistItems);
                 HistoryLog historyLog = new HistoryLog(historyEntries);
-                User user = new User(username, password, watchlist, historyLog);
-                users.put(username, user);
+                consumer.accept(new User(username, password, watchlist, historyLog));
             }
             scanner.close();
+            return true;
         } catch (FileNotFoundException e) {
             System.out.println("Cannot read user file: " + e.getMessage());
+            return false;
         }
-        return users;
     }
 
     // Split watchlist string "id;id;id" into a list.
@@ -81,16 +100,65 @@ public class UserStorage {
     }
 
     public void saveUsers(HashMap<String, User> users, String path) {
+        long start = Metrics.start();
+        writeUsers(users, path);
+        Metrics.record("storage.saveUsers", start);
+    }
+
+    private void writeUsers(HashMap<String, User> users, String path) {
         try {
             PrintWriter writer = new PrintWriter(path);
-            writer.println("username,password,watchlist,history");
+            writer.println(HEADER);
             for (User user : users.values()) {
-                String line = user.getUsername() + "," + user.getPassword() + "," + user.watchlistForStorage() + "," + user.historyForStorage();
-                writer.println(line);
+                writer.println(formatRow(user));
             }
             writer.close();
         } catch (FileNotFoundException e) {
+            Metrics.recordError("storage.saveUsers");
             System.out.println("Unable to save users: " + e.getMessage());
         }
     }
+
+    public String formatRow(User user) {
+        return user.getUsername() + "," + user.getPassword() + "," + user.watchlistForStorage() + "," + user.historyForStorage();
+    }
+
+    // Why this user would not survive a write and re-read of users.csv, or null if it would.
+    // The row uses "," between columns, ";" between items, "@" inside history entries, and
+    // trims every field, so those characters, line breaks and edge spaces cannot be stored.
+    public String checkRepresentable(User user) {
+        if (user.getUsername().isEmpty() || !storable(user.getUsername(), ",")) {
+            return "username cannot be stored in users.csv";
+        }
+        if (user.getPassword().isEmpty() || !storable(user.getPassword(), ",")) {
+            return "password cannot be stored in users.csv";
+        }
+        for (String id : user.getWatchlist().getItems()) {
+            if (id.isEmpty() || !storable(id, ",;")) {
+                return "watchlist id \"" + id + "\" cannot be stored in users.csv";
+            }
+        }
+        for (History entry : user.getHistory().getEntries()) {
+            if (entry.getMovieId().isEmpty() || !storable(entry.getMovieId(), ",;@")) {
+                return "history id \"" + entry.getMovieId() + "\" cannot be stored in users.csv";
+            }
+            if (entry.getWatchedDate().isEmpty() || !storable(entry.getWatchedDate(), ",;@")) {
+                return "history date \"" + entry.getWatchedDate() + "\" cannot be stored in users.csv";
+            }
+        }
+        return null;
+    }
+
+    private boolean storable(String text, String forbidden) {
+        if (!text.equals(text.trim())) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || forbidden.indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
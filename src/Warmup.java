@@ -0,0 +1,83 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+
+// Short synthetic workload that gets the loaders and RecommendationEngine.recommend compiled
+// before the user needs them. Uses a throwaway user and temp files, so no real data changes.
+// Metrics are muted on the warm-up thread so its calls do not mix with real ones.
+public class Warmup {
+    private static final int ROUNDS = 200;
+    private static final String[] MODES = {
+        RecommendationEngine.MODE_RATING_DESC, RecommendationEngine.MODE_RATING_ASC,
+        RecommendationEngine.MODE_YEAR_DESC, RecommendationEngine.MODE_YEAR_ASC,
+        RecommendationEngine.MODE_RANDOM, RecommendationEngine.MODE_TRENDING, RecommendationEngine.MODE_SIMILAR
+    };
+
+    // Run on a low-priority daemon thread so the menu is not held up.
+    public static Thread startInBackground(MovieLibrary library, RecommendationEngine engine) {
+        Thread thread = new Thread(() -> run(library, engine), "warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    public static void run(MovieLibrary library, RecommendationEngine engine) {
+        Metrics.setMutedOnCurrentThread(true);
+        try {
+            warmUp(library, engine);
+        } finally {
+            Metrics.setMutedOnCurrentThread(false);
+        }
+    }
+
+    private static void warmUp(MovieLibrary library, RecommendationEngine engine) {
+        warmLoaders();
+        if (library.getAllMovies().isEmpty()) {
+            return;
+        }
+        User user = new User("warmup", "warmup", new Watchlist(), new HistoryLog());
+        user.addToWatchlist(library.getAllMovies().get(0).getId());
+        user.markWatched(library.getAllMovies().get(library.getAllMovies().size() - 1).getId(), "2000-01-01");
+        for (int round = 0; round < ROUNDS; round++) {
+            String genre = round % 2 == 0 ? null : library.getAllMovies().get(round % library.getAllMovies().size()).getGenre();
+            engine.recommend(user, library, genre, MODES[round % MODES.length], 10);
+            if (round % 20 == 0) {
+                engine.listGenres(library);
+            }
+        }
+    }
+
+    // Load small generated files a few times to compile the CSV parsing paths.
+    private static void warmLoaders() {
+        try {
+            File movies = File.createTempFile("mms-warmup-movies", ".csv");
+            File users = File.createTempFile("mms-warmup-users", ".csv");
+            movies.deleteOnExit();
+            users.deleteOnExit();
+            try (PrintWriter writer = new PrintWriter(movies)) {
+                writer.println("id,title,genre,year,rating");
+                for (int i = 0; i < 500; i++) {
+                    writer.println("W" + i + ",Warmup " + i + ",Genre" + (i % 7) + "," + (1950 + i % 70) + "," + (i % 100) / 10.0);
+                }
+            }
+            try (PrintWriter writer = new PrintWriter(users)) {
+                writer.println("username,password,watchlist,history");
+                for (int i = 0; i < 200; i++) {
+                    writer.println("w" + i + ",warmup,W" + i + ";W" + (i + 1) + ",W" + (i + 2) + "@2000-01-01");
+                }
+            }
+            UserStorage storage = new UserStorage();
+            for (int i = 0; i < 5; i++) {
+                new MovieLibrary().loadFromFile(movies.getPath());
+                HashMap<String, User> loaded = storage.loadUsers(users.getPath());
+                storage.saveUsers(loaded, users.getPath());
+            }
+            movies.delete();
+            users.delete();
+        } catch (IOException e) {
+            System.out.println("Warm-up skipped: " + e.getMessage());
+        }
+    }
+}